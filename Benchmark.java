@@ -0,0 +1,206 @@
+import java.io.File;
+import java.io.PrintStream;
+import java.io.OutputStream;
+import java.util.*;
+
+/**
+ * Benchmark corpus of boards stratified by optimal solution length, and a harness
+ * that runs every solver over it
+ * 
+ * ex. java Benchmark generate corpus.txt [boards per depth] [seed]
+ *     java Benchmark run corpus.txt results.txt [baseline.txt]
+ */
+public class Benchmark {
+    // Solvers to compare, as arguments to the solve command
+    private static final String[][] SOLVERS = {
+        {"A-star", "h1"},
+        {"A-star", "h2"},
+        {"beam", "5"},
+        {"beam", "100"}
+    };
+
+    // Longest optimal solution of any solvable board
+    private static final int MAX_DEPTH = 31;
+
+    // Boards at or below this depth are solved once before timing starts
+    private static final int WARMUP_DEPTH = 16;
+
+    /**
+     * Writes a corpus with up to perDepth boards of each optimal depth 0-31
+     * Depths with fewer boards than perDepth (such as the two 31 move boards) are included whole
+     * 
+     * @param file Corpus file to write
+     * @param perDepth Boards per depth
+     * @param seed Seed for choosing boards
+     * @throws Exception
+     */
+    public static void generate(File file, int perDepth, long seed) throws Exception {
+        if (perDepth <= 0) {
+            throw new IllegalArgumentException("Please enter a value greater than 0.");
+        }
+        // group ranks of solvable states by distance
+        List<List<Integer>> byDepth = new ArrayList<>();
+        for (int depth = 0; depth <= MAX_DEPTH; depth++) {
+            byDepth.add(new ArrayList<>());
+        }
+        for (int rank = 0; rank < Distances.PERMUTATIONS; rank++) {
+            int distance = Distances.distance(rank);
+            if (distance != Distances.UNREACHABLE) {
+                byDepth.get(distance).add(rank);
+            }
+        }
+
+        SplittableRandom random = new SplittableRandom(seed);
+        PrintStream out = new PrintStream(file);
+        out.println("# 8-puzzle benchmark corpus: " + perDepth + " boards per depth, seed " + seed);
+        out.println("# depth state");
+        for (int depth = 0; depth <= MAX_DEPTH; depth++) {
+            List<Integer> ranks = byDepth.get(depth);
+            // partial shuffle to pick boards without repeats
+            int count = Math.min(perDepth, ranks.size());
+            for (int i = 0; i < count; i++) {
+                Collections.swap(ranks, i, i + random.nextInt(ranks.size() - i));
+                out.println(depth + " " + Board.unrank(ranks.get(i)));
+            }
+        }
+        out.close();
+    }
+
+    /**
+     * Runs every solver over a corpus and writes the averages of each depth bucket
+     * 
+     * @param corpus Corpus file
+     * @param results File to write results to, which can serve as a later baseline
+     * @param baseline Results of an earlier run to compare against, or null
+     * @throws Exception
+     */
+    public static void run(File corpus, File results, File baseline) throws Exception {
+        List<Integer> depths = new ArrayList<>();
+        List<String[]> states = new ArrayList<>();
+        Scanner scan = new Scanner(corpus);
+        while (scan.hasNextLine()) {
+            String line = scan.nextLine();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] arguments = line.split(" ");
+            depths.add(Integer.parseInt(arguments[0]));
+            states.add(new String[] {arguments[1], arguments[2], arguments[3]});
+        }
+        scan.close();
+
+        Map<String, double[]> base = baseline == null ? new HashMap<>() : readResults(baseline);
+        EightPuzzle p = new EightPuzzle();
+        p.setOutput(new PrintStream(OutputStream.nullOutputStream()));
+
+        // let the JIT compile the solvers before timing
+        for (String[] solver : SOLVERS) {
+            for (int i = 0; i < states.size(); i++) {
+                if (depths.get(i) <= WARMUP_DEPTH) {
+                    solveQuietly(p, states.get(i), solver);
+                }
+            }
+        }
+
+        PrintStream out = new PrintStream(results);
+        System.out.println(String.format("%-12s %5s %7s %10s %10s %7s   %s",
+                "solver", "depth", "solved", "nodes", "time(us)", "length", "vs baseline"));
+        for (String[] solver : SOLVERS) {
+            // per depth: boards, solved, nodes, nanoseconds, moves
+            long[][] totals = new long[MAX_DEPTH + 1][5];
+            for (int i = 0; i < states.size(); i++) {
+                long[] bucket = totals[depths.get(i)];
+                long start = System.nanoTime();
+                boolean solved = solveQuietly(p, states.get(i), solver);
+                long time = System.nanoTime() - start;
+                bucket[0]++;
+                bucket[2] += p.getNodesConsidered();
+                bucket[3] += time;
+                if (solved) {
+                    bucket[1]++;
+                    bucket[4] += p.getSolution().length;
+                }
+            }
+            String name = solver[0] + " " + solver[1];
+            for (int depth = 0; depth <= MAX_DEPTH; depth++) {
+                long[] bucket = totals[depth];
+                if (bucket[0] == 0) {
+                    continue;
+                }
+                double nodes = (double) bucket[2] / bucket[0];
+                double micros = bucket[3] / 1000.0 / bucket[0];
+                double length = bucket[1] == 0 ? -1 : (double) bucket[4] / bucket[1];
+                out.println(name + " " + depth + " " + bucket[0] + " " + bucket[1]
+                        + " " + nodes + " " + micros + " " + length);
+                String line = String.format("%-12s %5d %3d/%-3d %10.1f %10.1f %7.2f",
+                        name, depth, bucket[1], bucket[0], nodes, micros, length);
+                double[] old = base.get(name + " " + depth);
+                if (old != null) {
+                    line += String.format("   nodes x%.2f, time x%.2f, length %+.2f",
+                            nodes / Math.max(old[2], 1), micros / Math.max(old[3], 1e-3), length - old[4]);
+                }
+                System.out.println(line);
+            }
+        }
+        out.close();
+    }
+
+    /**
+     * Sets the state of p and solves it, ignoring search failures
+     * 
+     * @param p Puzzle to solve
+     * @param state Rows of the state
+     * @param solver Arguments to the solve command
+     * @return True if a solution was found
+     */
+    private static boolean solveQuietly(EightPuzzle p, String[] state, String[] solver) {
+        p.setState(state);
+        try {
+            p.solve(solver[0], solver[1]);
+        } catch (OutOfMemoryError e) {
+            return false;
+        } catch (Exception e) {
+            return false;
+        }
+        return p.getSolution() != null;
+    }
+
+    /**
+     * Reads a results file written by run
+     * 
+     * @param file Results file
+     * @return Map of "solver depth" to {boards, solved, nodes, time, length}
+     * @throws Exception
+     */
+    private static Map<String, double[]> readResults(File file) throws Exception {
+        Map<String, double[]> results = new HashMap<>();
+        Scanner scan = new Scanner(file);
+        while (scan.hasNextLine()) {
+            String[] arguments = scan.nextLine().split(" ");
+            if (arguments.length != 8) {
+                continue;
+            }
+            double[] values = new double[5];
+            for (int i = 0; i < 5; i++) {
+                values[i] = Double.parseDouble(arguments[i + 3]);
+            }
+            results.put(arguments[0] + " " + arguments[1] + " " + arguments[2], values);
+        }
+        scan.close();
+        return results;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 2 && args[0].equals("generate")) {
+            int perDepth = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+            long seed = args.length > 3 ? Long.parseLong(args[3]) : 391;
+            generate(new File(args[1]), perDepth, seed);
+        } else if (args.length >= 3 && args[0].equals("run")) {
+            File baseline = args.length > 3 ? new File(args[3]) : null;
+            run(new File(args[1]), new File(args[2]), baseline);
+        } else {
+            System.out.println("Usage: java Benchmark generate corpus.txt [boards per depth] [seed]");
+            System.out.println("       java Benchmark run corpus.txt results.txt [baseline.txt]");
+        }
+    }
+}
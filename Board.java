@@ -0,0 +1,370 @@
+/**
+ * Immutable 8-puzzle board
+ * Tiles are packed 4 bits each into a long with the top left tile first, so the
+ * goal state is 0x012345678. Boards with the same tiles are equal and have the
+ * same precomputed hash code, and they can be shared between threads without copying.
+ * The constants and the static helpers on packed tiles are package-private, for the
+ * searches in this package that work on packed tiles directly.
+ */
+public final class Board {
+    // Move codes, indexed into MOVES. Opposite moves differ only in the low bit
+    static final int UP = 0;
+    static final int DOWN = 1;
+    static final int LEFT = 2;
+    static final int RIGHT = 3;
+    static final int NONE = -1;
+    static final String[] MOVES = {"up", "down", "left", "right"};
+
+    // Change in blank position for each move code
+    static final int[] OFFSETS = {-3, 3, -1, 1};
+
+    // Moves available from each blank position, as move codes
+    static final int[][] NEIGHBORS = {
+        {DOWN, RIGHT},
+        {DOWN, LEFT, RIGHT},
+        {DOWN, LEFT},
+        {UP, DOWN, RIGHT},
+        {UP, DOWN, LEFT, RIGHT},
+        {UP, DOWN, LEFT},
+        {UP, RIGHT},
+        {UP, LEFT, RIGHT},
+        {UP, LEFT}
+    };
+
+    // Packed goal state
+    static final long GOAL_TILES = 0x012345678L;
+
+    // Solved board
+    public static final Board GOAL = new Board(GOAL_TILES, 0);
+
+    // Packed tiles
+    private final long tiles;
+
+    // Index of the blank tile, 0 being the top left
+    private final int blank;
+
+    // Hash code, computed once
+    private final int hash;
+
+    /**
+     * Constructs a board from tiles already known to be valid
+     * 
+     * @param tiles Packed tiles
+     * @param blank Index of the blank tile
+     */
+    private Board(long tiles, int blank) {
+        this.tiles = tiles;
+        this.blank = blank;
+        // spread the nibbles over the whole hash
+        this.hash = Long.hashCode(tiles * 0x9E3779B97F4A7C15L);
+    }
+
+    /**
+     * Board with the given packed tiles
+     * Note that this does not check if the state is reachable from the goal state
+     * 
+     * @param tiles Packed tiles, each of 0-8 appearing once
+     * @return Board
+     * @throws IllegalArgumentException Tiles are not a permutation of 0-8
+     */
+    public static Board of(long tiles) throws IllegalArgumentException {
+        int seen = 0;
+        for (int i = 0; i < 9; i++) {
+            seen |= 1 << tile(tiles, i);
+        }
+        if (seen != 0x1FF || tiles >>> 36 != 0) {
+            throw new IllegalArgumentException("Invalid state.");
+        }
+        return new Board(tiles, blankIndex(tiles));
+    }
+
+    /**
+     * Board at a rank, see rank
+     * 
+     * @param rank Rank in [0, 362880)
+     * @return Board
+     * @throws IllegalArgumentException Rank is out of range
+     */
+    public static Board unrank(int rank) throws IllegalArgumentException {
+        if (rank < 0 || rank >= 362880) {
+            throw new IllegalArgumentException("Invalid rank.");
+        }
+        long tiles = unrankTiles(rank);
+        return new Board(tiles, blankIndex(tiles));
+    }
+
+    /**
+     * Returns the packed tiles
+     * 
+     * @return Packed tiles
+     */
+    public long packed() {
+        return tiles;
+    }
+
+    /**
+     * Returns the position of the blank tile
+     * 
+     * @return Index of the blank tile, 0 being the top left
+     */
+    public int blank() {
+        return blank;
+    }
+
+    /**
+     * Returns the tile at a position
+     * 
+     * @param index Position, 0 being the top left
+     * @return Tile, 0 for the blank
+     */
+    public int tile(int index) {
+        return tile(tiles, index);
+    }
+
+    /**
+     * Checks if the blank tile can move in a direction
+     * 
+     * @param move Move code
+     * @return True if the move is valid
+     */
+    private boolean canMove(int move) {
+        switch (move) {
+            case UP:
+                return blank >= 3;
+            case DOWN:
+                return blank < 6;
+            case LEFT:
+                return blank % 3 != 0;
+            case RIGHT:
+                return blank % 3 != 2;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Board after moving the blank tile
+     * 
+     * @param move Move code
+     * @return New board, or null if the move is invalid
+     */
+    public Board move(int move) {
+        if (!canMove(move)) {
+            return null;
+        }
+        int target = blank + OFFSETS[move];
+        return new Board(swapBlank(tiles, blank, target), target);
+    }
+
+    /**
+     * Checks if this is the goal state
+     * 
+     * @return True if solved
+     */
+    public boolean isGoal() {
+        return tiles == GOAL_TILES;
+    }
+
+    /**
+     * Checks if the goal state can be reached from this board
+     * 
+     * @return True if solvable
+     */
+    public boolean isSolvable() {
+        return isSolvable(tiles);
+    }
+
+    /**
+     * Ranks the board among all 9! tile orders, the goal having rank 0
+     * 
+     * @return Rank in [0, 362880)
+     */
+    public int rank() {
+        return rank(tiles);
+    }
+
+    /**
+     * Heuristic function based on number of misplaced tiles
+     * 
+     * @return Function value
+     */
+    public int h1() {
+        int misplaced = 0;
+        for (int i = 0; i < 9; i++) {
+            if (tile(tiles, i) != i) {
+                misplaced++;
+            }
+        }
+        return misplaced;
+    }
+
+    /**
+     * Heuristic function based on Manhattan distance of tiles to correct spot
+     * 
+     * @return Function value
+     */
+    public int h2() {
+        return h2(tiles);
+    }
+
+    /**
+     * Manhattan distance of tiles 1-8 to their correct spots
+     * Unlike h2 the blank is not counted, so this never overestimates the number of moves
+     * 
+     * @return Function value
+     */
+    public int manhattan() {
+        // the blank's goal spot is index 0, so its term is its row plus its column
+        return h2(tiles) - blank / 3 - blank % 3;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Board && ((Board) o).tiles == tiles;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Formats the board in the setState format
+     * 
+     * @return String in the format "012 345 678"
+     */
+    @Override
+    public String toString() {
+        String digits = String.format("%09x", tiles);
+        return digits.substring(0, 3) + " " + digits.substring(3, 6) + " " + digits.substring(6);
+    }
+
+    /**
+     * Tile at a position of packed tiles
+     * 
+     * @param tiles Packed tiles
+     * @param index Position, 0 being the top left
+     * @return Tile
+     */
+    static int tile(long tiles, int index) {
+        return (int) (tiles >>> (32 - 4 * index)) & 0xF;
+    }
+
+    /**
+     * Finds the position of the blank tile in packed tiles
+     * 
+     * @param tiles Packed tiles
+     * @return Index of the blank tile, 0 being the top left
+     */
+    static int blankIndex(long tiles) {
+        int blank = 0;
+        while (tile(tiles, blank) != 0) {
+            blank++;
+        }
+        return blank;
+    }
+
+    /**
+     * Moves the blank tile of packed tiles
+     * Assumes the move is valid for the tiles
+     * 
+     * @param tiles Packed tiles
+     * @param move Move code
+     * @return Packed tiles after the move
+     */
+    static long applyMove(long tiles, int move) {
+        int blank = blankIndex(tiles);
+        return swapBlank(tiles, blank, blank + OFFSETS[move]);
+    }
+
+    /**
+     * Slides the tile at target into the blank position of packed tiles
+     * 
+     * @param tiles Packed tiles
+     * @param blank Index of the blank tile
+     * @param target Index of the tile to slide, adjacent to blank
+     * @return Packed tiles with the blank tile at target
+     */
+    static long swapBlank(long tiles, int blank, int target) {
+        long tile = (tiles >>> (32 - 4 * target)) & 0xF;
+        return (tiles & ~(0xFL << (32 - 4 * target))) | (tile << (32 - 4 * blank));
+    }
+
+    /**
+     * Checks if packed tiles can reach the goal state
+     * The goal has no inversions among tiles 1-8 and every move keeps that count even
+     * 
+     * @param tiles Packed tiles
+     * @return True if solvable
+     */
+    static boolean isSolvable(long tiles) {
+        // count inversions of all 9 tiles, the blank adds one for each tile before it
+        int inversions = 0;
+        int remaining = 0x1FF;
+        for (int i = 0; i < 9; i++) {
+            int tile = tile(tiles, i);
+            inversions += Integer.bitCount(remaining & ((1 << tile) - 1));
+            remaining &= ~(1 << tile);
+        }
+        return (inversions - blankIndex(tiles)) % 2 == 0;
+    }
+
+    /**
+     * Ranks packed tiles among all 9! tile orders (Lehmer code)
+     * 
+     * @param tiles Packed tiles
+     * @return Rank in [0, 362880)
+     */
+    static int rank(long tiles) {
+        int rank = 0;
+        // bit set of tiles not yet seen
+        int remaining = 0x1FF;
+        for (int i = 0; i < 9; i++) {
+            int tile = tile(tiles, i);
+            rank = rank * (9 - i) + Integer.bitCount(remaining & ((1 << tile) - 1));
+            remaining &= ~(1 << tile);
+        }
+        return rank;
+    }
+
+    /**
+     * Inverse of rank
+     * 
+     * @param rank Rank in [0, 362880)
+     * @return Packed tiles
+     */
+    static long unrankTiles(int rank) {
+        long tiles = 0;
+        int remaining = 0x1FF;
+        for (int i = 0, radix = 40320; i < 9; i++) {
+            // take the n-th smallest remaining tile, n being the next factorial digit
+            int bits = remaining;
+            for (int n = rank / radix; n > 0; n--) {
+                bits &= bits - 1;
+            }
+            rank %= radix;
+            if (i < 8) {
+                radix /= 8 - i;
+            }
+            int tile = Integer.numberOfTrailingZeros(bits);
+            remaining &= ~(1 << tile);
+            tiles = (tiles << 4) | tile;
+        }
+        return tiles;
+    }
+
+    /**
+     * Manhattan distance heuristic of packed tiles, counting the blank like h2
+     * 
+     * @param tiles Packed tiles
+     * @return Function value
+     */
+    static int h2(long tiles) {
+        int sum = 0;
+        for (int i = 0; i < 9; i++) {
+            int tile = tile(tiles, i);
+            sum += Math.abs(tile / 3 - i / 3) + Math.abs(tile % 3 - i % 3);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,178 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Exact number of moves from every state to the goal state
+ * The table is built on first use by a breadth-first search back from the goal and
+ * saved to a snapshot file, which later launches map into memory instead of rebuilding.
+ * The file is eightpuzzle.tables in the working directory unless the
+ * eightpuzzle.tables system property names another.
+ */
+public class Distances {
+    // Number of tile orders, 9!
+    protected static final int PERMUTATIONS = 362880;
+
+    // Marks states that cannot reach the goal
+    protected static final byte UNREACHABLE = -1;
+
+    // Snapshot format version, increase when the table's layout or contents change
+    private static final int VERSION = 1;
+
+    // Distance of each state indexed by Board.rank, loaded or built lazily
+    // Only absolute gets are used, so the buffer is safe to share between threads
+    private static volatile ByteBuffer table;
+
+    // Set once the snapshot file has been checked, so a missing snapshot is only looked for once
+    private static volatile boolean probed;
+
+    /**
+     * Makes sure the table is ready, loading the snapshot or building and saving
+     * the table if there is no valid snapshot
+     */
+    public static void load() {
+        table();
+    }
+
+    /**
+     * Returns the distance table, loading or building it on first use
+     * 
+     * @return Distance to the goal indexed by Board.rank, UNREACHABLE if unsolvable
+     */
+    private static ByteBuffer table() {
+        // read without locking once loaded, since lookups come from many threads
+        ByteBuffer distances = table;
+        if (distances == null) {
+            synchronized (Distances.class) {
+                if (table == null) {
+                    table = TableSnapshot.load(snapshotFile(), VERSION, PERMUTATIONS);
+                }
+                if (table == null) {
+                    byte[] built = build();
+                    try {
+                        TableSnapshot.save(snapshotFile(), VERSION, built);
+                    } catch (IOException e) {
+                        // the snapshot only saves time on later launches
+                    }
+                    table = ByteBuffer.wrap(built);
+                }
+                distances = table;
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Checks if the snapshot file holds a valid table of the current version
+     * 
+     * @return True if later launches can load the snapshot
+     */
+    public static boolean isSaved() {
+        return TableSnapshot.load(snapshotFile(), VERSION, PERMUTATIONS) != null;
+    }
+
+    /**
+     * Returns the snapshot file
+     * 
+     * @return Path of the snapshot
+     */
+    protected static Path snapshotFile() {
+        return Paths.get(System.getProperty("eightpuzzle.tables", "eightpuzzle.tables"));
+    }
+
+    /**
+     * Number of moves in an optimal solution
+     * 
+     * @param board Board to solve
+     * @return Distance to the goal, UNREACHABLE if unsolvable
+     */
+    public static int distance(Board board) {
+        return distance(board.rank());
+    }
+
+    /**
+     * Number of moves in an optimal solution
+     * 
+     * @param rank Rank of the board to solve, see Board.rank
+     * @return Distance to the goal, UNREACHABLE if unsolvable
+     */
+    public static int distance(int rank) {
+        return table().get(rank);
+    }
+
+    /**
+     * Checks if lookups are cheap, mapping a saved snapshot if there is one
+     * This never builds the table, and the file is only checked once per process
+     * 
+     * @return True if the table is ready
+     */
+    public static boolean isAvailable() {
+        if (table == null && !probed) {
+            synchronized (Distances.class) {
+                if (table == null && !probed) {
+                    table = TableSnapshot.load(snapshotFile(), VERSION, PERMUTATIONS);
+                    probed = true;
+                }
+            }
+        }
+        return table != null;
+    }
+
+    /**
+     * Optimal solution found by always moving to a neighbor one step closer to the goal
+     * 
+     * @param board Board to solve
+     * @return Move codes from board to the goal, or null if unsolvable
+     */
+    public static byte[] solve(Board board) {
+        ByteBuffer distances = table();
+        int distance = distances.get(board.rank());
+        if (distance == UNREACHABLE) {
+            return null;
+        }
+        byte[] path = new byte[distance];
+        for (int i = 0; i < path.length; i++) {
+            for (int move : Board.NEIGHBORS[board.blank()]) {
+                Board child = board.move(move);
+                if (distances.get(child.rank()) == distance - i - 1) {
+                    path[i] = (byte) move;
+                    board = child;
+                    break;
+                }
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Breadth-first search from the goal over state ranks
+     * 
+     * @return Distance table
+     */
+    private static byte[] build() {
+        byte[] distances = new byte[PERMUTATIONS];
+        Arrays.fill(distances, UNREACHABLE);
+        // only half of the states are reachable from the goal
+        int[] queue = new int[PERMUTATIONS / 2];
+        int head = 0;
+        int tail = 0;
+        distances[0] = 0;
+        queue[tail++] = 0;
+        while (head < tail) {
+            int rank = queue[head++];
+            long state = Board.unrankTiles(rank);
+            int blank = Board.blankIndex(state);
+            for (int move : Board.NEIGHBORS[blank]) {
+                long child = Board.swapBlank(state, blank, blank + Board.OFFSETS[move]);
+                int next = Board.rank(child);
+                if (distances[next] == UNREACHABLE) {
+                    distances[next] = (byte) (distances[rank] + 1);
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return distances;
+    }
+}
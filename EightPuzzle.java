@@ -1,7 +1,9 @@
 import java.util.*;
+import java.util.function.ToIntFunction;
 import java.io.File;
+import java.io.PrintStream;
 
-public class EightPuzzle implements Comparable<EightPuzzle> {
+public class EightPuzzle {
     // Using matrix to represent puzzle
     private int[][] grid;
 
@@ -11,17 +13,23 @@ public class EightPuzzle implements Comparable<EightPuzzle> {
     // Column of the space
     private int c;
 
-    // Reference to parent state 
-    private EightPuzzle parent;
+    // Max number of nodes to consider during search
+    private static int maxNodes = Integer.MAX_VALUE;
 
-    // Previous move
-    private String prevMove;
+    // Max number of nodes for searches of this puzzle, 0 to use maxNodes
+    private int nodeLimit;
 
-    // Value of state 
-    private int value;
+    // Longest path windowed beam search stores before giving up
+    private static final int MAX_WINDOWED_DEPTH = 1 << 14;
 
-    // Max number of nodes to consider during search
-    private static int maxNodes = Integer.MAX_VALUE;
+    // Moves of the last solution found
+    private byte[] solution;
+
+    // Number of nodes generated by the last search
+    private int nodesConsidered;
+
+    // Where search results are printed
+    private PrintStream out = System.out;
 
     /**
      * Constructs a new 8-Puzzle in the solved state
@@ -30,9 +38,6 @@ public class EightPuzzle implements Comparable<EightPuzzle> {
         grid = new int[][] {{0,1,2}, {3,4,5}, {6,7,8}};
         r = 0;
         c = 0;
-        parent = null;
-        prevMove = null;
-        value = 0;
     }
 
     /**
@@ -47,6 +52,27 @@ public class EightPuzzle implements Comparable<EightPuzzle> {
         maxNodes = n;
     }
 
+    /**
+     * Set the max number of nodes to be considered during searches of this puzzle only
+     * 
+     * @param n Number of nodes to consider
+     */
+    public void setNodeLimit(int n) throws IllegalArgumentException {
+        if (n <= 0) {
+            throw new IllegalArgumentException("Please enter a value greater than 0.");
+        }
+        nodeLimit = n;
+    }
+
+    /**
+     * Max number of nodes for searches of this puzzle
+     * 
+     * @return Node limit set for this puzzle, or the shared limit if there is none
+     */
+    private int maxNodes() {
+        return nodeLimit > 0 ? nodeLimit : maxNodes;
+    }
+
     /**
      * Sets the state of the 8-Puzzle
      * Note that this does not check if the state is reachable from the goal state
@@ -92,6 +118,44 @@ public class EightPuzzle implements Comparable<EightPuzzle> {
         return true;
     }
 
+    /**
+     * Sets the state of the 8-Puzzle from a packed board, see gridToLong
+     * Note that this does not check if the state is reachable from the goal state
+     * 
+     * @param state Packed board state
+     * @return True if state is successfully set
+     */
+    public boolean setState(long state) {
+        try {
+            setState(Board.of(state));
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Sets the state of the 8-Puzzle to a board
+     * 
+     * @param board Board to copy
+     */
+    public void setState(Board board) {
+        for (int i = 0; i < 9; i++) {
+            grid[i / 3][i % 3] = board.tile(i);
+        }
+        r = board.blank() / 3;
+        c = board.blank() % 3;
+    }
+
+    /**
+     * Returns the current state as an immutable board
+     * 
+     * @return Board with the same tiles
+     */
+    public Board getBoard() {
+        return Board.of(gridToLong(this));
+    }
+
     /**
      * Helper method to check the formatting of setState input
      * 
@@ -119,7 +183,6 @@ public class EightPuzzle implements Comparable<EightPuzzle> {
         }
         grid[r][c] = grid[--r][c];
         grid[r][c] = 0;
-        prevMove = "up";
         return true;
     }
 
@@ -134,7 +197,6 @@ public class EightPuzzle implements Comparable<EightPuzzle> {
         }
         grid[r][c] = grid[++r][c];
         grid[r][c] = 0;
-        prevMove = "down";
         return true;
     }
 
@@ -149,7 +211,6 @@ public class EightPuzzle implements Comparable<EightPuzzle> {
         }
         grid[r][c] = grid[r][--c];
         grid[r][c] = 0;
-        prevMove = "left";
         return true;
     }
 
@@ -164,7 +225,6 @@ public class EightPuzzle implements Comparable<EightPuzzle> {
         }
         grid[r][c] = grid[r][++c];
         grid[r][c] = 0;
-        prevMove = "right";
         return true;
     }
 
@@ -174,24 +234,7 @@ public class EightPuzzle implements Comparable<EightPuzzle> {
      * @param n Number of random moves to perform
      */
     public void randomize(int n) {
-        Random random = new Random();
-        // Reset grid
-        grid = new int[][] {{0,1,2}, {3,4,5}, {6,7,8}};
-        r = 0;
-        c = 0;
-        for (int i = 0; i < n; i++) {
-            List<String> moves = getValidMoves();
-            String move = moves.get((int)(random.nextDouble()*moves.size()));
-            if (move.equals("up")) {
-                up();
-            } else if (move.equals("down")) {
-                down();
-            }  else if (move.equals("left")) {
-                left();
-            } else {
-                right();
-            }
-        }
+        randomize(n, new Random());
     }
 
     /**
@@ -202,46 +245,72 @@ public class EightPuzzle implements Comparable<EightPuzzle> {
      * @param seed Seed for random number generator
      */
     public void randomize(int n, long seed) {
-        Random random = new Random(seed);
-        // Reset grid
-        grid = new int[][] {{0,1,2}, {3,4,5}, {6,7,8}};
+        randomize(n, new Random(seed));
+    }
+
+    /**
+     * Randomly performs n moves from the goal state using the given generator
+     * 
+     * @param n Number of random moves to perform
+     * @param random Random number generator
+     */
+    private void randomize(int n, Random random) {
+        // Reset grid in place
+        for (int i = 0; i < 9; i++) {
+            grid[i / 3][i % 3] = i;
+        }
         r = 0;
         c = 0;
+        int[] moves = new int[4];
         for (int i = 0; i < n; i++) {
-            List<String> moves = getValidMoves();
-            String move = moves.get((int)(random.nextDouble()*moves.size()));
-            if (move.equals("up")) {
-                up();
-            } else if (move.equals("down")) {
-                down();
-            }  else if (move.equals("left")) {
-                left();
-            } else {
-                right();
-            }
+            int count = getValidMoves(moves);
+            move(moves[(int)(random.nextDouble()*count)]);
+        }
+    }
+
+    /**
+     * Moves blank tile in the direction of a move code
+     * 
+     * @param move Move code
+     * @return True if blank tile can move in that direction
+     */
+    private boolean move(int move) {
+        switch (move) {
+            case Board.UP:
+                return up();
+            case Board.DOWN:
+                return down();
+            case Board.LEFT:
+                return left();
+            case Board.RIGHT:
+                return right();
+            default:
+                return false;
         }
     }
 
     /**
-     * Returns a list of valid moves for given board state
+     * Fills an array with the valid move codes for given board state
+     * Moves are listed in the order up, down, left, right
      * 
-     * @return List of valid moves
+     * @param moves Array of length at least 4 to fill
+     * @return Number of valid moves
      */
-    private List<String> getValidMoves() {
-        List<String> moves = new LinkedList<>();
+    private int getValidMoves(int[] moves) {
+        int count = 0;
         // can move up
         if (r != 0)
-            moves.add("up");
+            moves[count++] = Board.UP;
         // can move down
         if (r != 2)
-            moves.add("down");
+            moves[count++] = Board.DOWN;
         // can move left
         if (c != 0)
-            moves.add("left");
+            moves[count++] = Board.LEFT;
         // can move right
         if (c != 2)
-            moves.add("right");
-        return moves;
+            moves[count++] = Board.RIGHT;
+        return count;
     }
 
     /**
@@ -252,13 +321,14 @@ public class EightPuzzle implements Comparable<EightPuzzle> {
      * @return Number of moves
      */
     public int solveAStar(String heuristic) throws IllegalArgumentException {
+        solution = null;
         if (heuristic.equals("h1")) {
-            int moves = solveH1();
-            System.out.println("Number of moves: " + moves + "\n");
+            int moves = solveAStar(Board::h1);
+            out.println("Number of moves: " + moves + "\n");
             return moves;
         } else if (heuristic.equals("h2")) {
-            int moves = solveH2();
-            System.out.println("Number of moves: " + moves + "\n");
+            int moves = solveAStar(Board::h2);
+            out.println("Number of moves: " + moves + "\n");
             return moves;
         } else {
             throw new IllegalArgumentException("Invalid heuristic");
@@ -266,231 +336,71 @@ public class EightPuzzle implements Comparable<EightPuzzle> {
     }
 
     /**
-     * A* search using h1
+     * Solves 8-puzzle using A* search with the Manhattan distance of tiles 1-8 and prints the solution
+     * The heuristic never overestimates, so the solution is optimal
      * 
      * @return Number of moves
-     * @throws OutOfMemoryError Max node limit exceeded
      */
-    private int solveH1() throws OutOfMemoryError {
-        // min cost heap
-        PriorityQueue<EightPuzzle> pq = new PriorityQueue<>();
-
-        // keep track of visited states
-        Map<String, EightPuzzle> visited = new HashMap<>();
-
-        // count of generated nodes
-        int nodes = 0;
-
-        // add initial state to pq
-        pq.add(this);
-
-        while (!visited.containsKey("012345678") && !pq.isEmpty() && nodes <= maxNodes) {
-            EightPuzzle currState = pq.poll();
-            String gridString = gridToString(currState);
-            if (!visited.containsKey(gridString)) {
-                visited.put(gridString, currState);
-
-                List<String> validMoves = currState.getValidMoves();
-                for (String move : validMoves) {
-                    // generate and add child state if not already visited
-                    EightPuzzle child = currState.duplicate();
-                    if (move.equals("up")) {
-                        child.up();
-                    } else if (move.equals("down")) {
-                        child.down();
-                    } else if (move.equals("left")) {
-                        child.left();
-                    } else {
-                        child.right();
-                    }
-                    if (!visited.containsKey(gridToString(child))) {
-                        int depth = currState.value - h1(currState) + 1;
-                        child.parent = currState;
-                        child.value = depth + h1(child);
-                        pq.add(child);
-                        nodes++;
-                    }
-                }
-            }
-        }
-        
-        if (nodes > maxNodes) {
-            throw new OutOfMemoryError("Max node limit exceeded.");
-        }
-
-        // Extract path
-        EightPuzzle trav = null;
-        if (visited.containsKey("012345678")) {
-            trav = visited.get("012345678");
-            int moveCount = 0;
-            List<String> path = new LinkedList<>();
-            while (trav != null) {
-                path.add(trav.prevMove);
-                moveCount++;
-                trav = trav.parent;
-            }
-            path.remove(path.size()-1);
-            Collections.reverse(path);
-            System.out.println(path.toString());
-            System.out.println("Nodes considered: " + nodes);
-            return moveCount-1;
-        }
-        System.out.println("No path found.");
-        return 0;
-    }
-
-    /**
-     * Create deep copy of current puzzle state
-     * 
-     * @return Deep copy of puzzle
-     */
-    private EightPuzzle duplicate() {
-        EightPuzzle copy = new EightPuzzle();
-        int[][] copyGrid = new int[3][3];
-        int i = 0;
-        for (int[] row : grid) {
-            int j = 0;
-            for (int tile : row) {
-                copyGrid[i][j++] = tile;
-            }
-            i++;
-        }
-        copy.grid = copyGrid;
-        copy.c = c;
-        copy.r = r;
-        return copy;
-    }
-
-    /**
-     * Heuristic function based on number of misplaced tiles
-     * 
-     * @param state State of the board
-     * @return Function value
-     */
-    private static int h1(EightPuzzle state) {
-        int misplaced = 0;
-        // didn't want to think about how to write loop
-        if (state.grid[0][0] != 0) {
-            misplaced++;
-        }
-        if (state.grid[0][1] != 1) {
-            misplaced++;
-        }
-        if (state.grid[0][2] != 2) {
-            misplaced++;
-        }
-        if (state.grid[1][0] != 3) {
-            misplaced++;
-        }
-        if (state.grid[1][1] != 4) {
-            misplaced++;
-        }
-        if (state.grid[1][2] != 5) {
-            misplaced++;
-        }
-        if (state.grid[2][0] != 6) {
-            misplaced++;
-        }
-        if (state.grid[2][1] != 7) {
-            misplaced++;
-        }
-        if (state.grid[2][2] != 8) {
-            misplaced++;
-        }
-        return misplaced;
+    public int solveOptimal() {
+        solution = null;
+        int moves = solveAStar(Board::manhattan);
+        out.println("Number of moves: " + moves + "\n");
+        return moves;
     }
 
     /**
-     * A* search using h2
+     * A* search using the given heuristic
      * 
+     * @param heuristic Heuristic function of a board
      * @return Number of moves
      * @throws OutOfMemoryError Max node limit exceeded
      */
-    private int solveH2() throws OutOfMemoryError {
+    private int solveAStar(ToIntFunction<Board> heuristic) throws OutOfMemoryError {
         // min cost heap
-        PriorityQueue<EightPuzzle> pq = new PriorityQueue<>();
+        PriorityQueue<Node> pq = new PriorityQueue<>();
 
-        // keep track of visited states
-        Map<String, EightPuzzle> visited = new HashMap<>();
+        // keep track of visited states and the move that reached each of them
+        Map<Long, Byte> visited = new HashMap<>();
 
         // count of generated nodes
         int nodes = 0;
 
-        // add initial state to pq
-        pq.add(this);
+        // add initial state to pq, with no incoming move
+        pq.add(new Node(getBoard(), Board.NONE, 0, 0));
 
-        while (!pq.isEmpty() && !visited.containsKey("012345678") && nodes <= maxNodes) {
-            EightPuzzle currState = pq.poll();
-            String gridString = gridToString(currState);
-            if (!visited.containsKey(gridString)) {
-                visited.put(gridString, currState);
-                List<String> validMoves = currState.getValidMoves();
-                for (String move : validMoves) {
+        while (!visited.containsKey(Board.GOAL_TILES) && !pq.isEmpty() && nodes <= maxNodes()) {
+            Node currState = pq.poll();
+            long packed = currState.board.packed();
+            if (!visited.containsKey(packed)) {
+                visited.put(packed, (byte) currState.move);
+                for (int move : Board.NEIGHBORS[currState.board.blank()]) {
                     // generate and add child state if not already visited
-                    EightPuzzle child = currState.duplicate();
-                    if (move.equals("up")) {
-                        child.up();
-                    } else if (move.equals("down")) {
-                        child.down();
-                    } else if (move.equals("left")) {
-                        child.left();
-                    } else {
-                        child.right();
-                    }
-                    if (!visited.containsKey(gridToString(child))) {
-                        int depth = currState.value - h2(currState) + 1;
-                        child.parent = currState;
-                        child.value = depth + h2(child);
-                        pq.add(child);
+                    Board child = currState.board.move(move);
+                    if (!visited.containsKey(child.packed())) {
+                        int depth = currState.depth + 1;
+                        pq.add(new Node(child, move, depth, depth + heuristic.applyAsInt(child)));
                         nodes++;
                     }
                 }
             }
         }
         
-        if (nodes > maxNodes) {
+        nodesConsidered = nodes;
+        if (nodes > maxNodes()) {
             throw new OutOfMemoryError("Max node limit exceeded.");
         }
 
         // Extract path
-        EightPuzzle trav = null;
-        if (visited.containsKey("012345678")) {
-            trav = visited.get("012345678");
-            int moveCount = 0;
-            List<String> path = new LinkedList<>();
-            while (trav != null) {
-                path.add(trav.prevMove);
-                moveCount++;
-                trav = trav.parent;
-            }
-            path.remove(path.size()-1);
-            Collections.reverse(path);
-            System.out.println(path.toString());
-            System.out.println("Nodes considered: " + nodes);
-            return moveCount-1;
+        if (visited.containsKey(Board.GOAL_TILES)) {
+            solution = extractPath(visited);
+            out.println(pathToString(solution));
+            out.println("Nodes considered: " + nodes);
+            return solution.length;
         }
-        System.out.println("No path found.");
+        out.println("No path found.");
         return 0;
     }
 
-    /**
-     * Heuristic function based on Manhattan distance of tiles to correct spot
-     * 
-     * @param state State of the board
-     * @return Function value
-     */
-    private static int h2(EightPuzzle state) {
-        int[][] spots = {{0,0},{0,1},{0,2},{1,0},{1,1},{1,2},{2,0},{2,1},{2,2}};
-        int sum = 0;
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
-                int[] spot = spots[state.grid[i][j]];
-                sum += Math.abs(spot[0] - i) + Math.abs(spot[1] - j);
-            }
-        }
-        return sum;
-    }
-
     /**
      * Solves 8-Puzzle using beam search and prints the solution
      * This version of beam search uses h2
@@ -503,15 +413,16 @@ public class EightPuzzle implements Comparable<EightPuzzle> {
         if (k <= 0) {
             throw new IllegalArgumentException("Invalid input for k.");
         }
+        solution = null;
 
         // min cost heap storing the best k nodes
-        PriorityQueue<EightPuzzle> best = new PriorityQueue<>();
+        PriorityQueue<Node> best = new PriorityQueue<>();
 
         // list of open nodes
-        List<EightPuzzle> frontier = new ArrayList<>();
+        List<Node> frontier = new ArrayList<>();
 
-        // keep track of visited states
-        Map<String, EightPuzzle> visited = new HashMap<>();
+        // keep track of visited states and the move that reached each of them
+        Map<Long, Byte> visited = new HashMap<>();
 
         // count of generated nodes
         int nodes = 0;
@@ -520,38 +431,29 @@ public class EightPuzzle implements Comparable<EightPuzzle> {
         boolean solved = false;
 
         // initial state is solved
-        if (gridToString(this).equals("012345678")) {
-            System.out.println("[]");
-            System.out.println("Nodes considered: 1");
-            System.out.println("Number of moves: 0");
+        if (gridToLong(this) == Board.GOAL_TILES) {
+            solution = new byte[0];
+            nodesConsidered = 1;
+            out.println("[]");
+            out.println("Nodes considered: 1");
+            out.println("Number of moves: 0");
             return 0;
         }
 
-        frontier.add(this);
+        // initial state has no incoming move
+        frontier.add(new Node(getBoard(), Board.NONE, 0, 0));
 
-        while (!frontier.isEmpty() && !solved && nodes <= maxNodes) {
-            for (EightPuzzle currState : frontier) {
-                String gridString = gridToString(currState);
-                if (!visited.containsKey(gridString)) {
-                    visited.put(gridString, currState);
-                    List<String> validMoves = currState.getValidMoves();
+        while (!frontier.isEmpty() && !solved && nodes <= maxNodes()) {
+            for (Node currState : frontier) {
+                long packed = currState.board.packed();
+                if (!visited.containsKey(packed)) {
+                    visited.put(packed, (byte) currState.move);
                     // generate and add child states if not visited
-                    for (String move : validMoves) {
-                        EightPuzzle child = currState.duplicate();
-                        if (move.equals("up")) {
-                            child.up();
-                        } else if (move.equals("down")) {
-                            child.down();
-                        } else if (move.equals("left")) {
-                            child.left();
-                        } else {
-                            child.right();
-                        }
+                    for (int move : Board.NEIGHBORS[currState.board.blank()]) {
+                        Board child = currState.board.move(move);
                         // using h2 for beam search
-                        if (!visited.containsKey(gridToString(child))) {
-                            child.parent = currState;
-                            child.value = h2(child);
-                            best.add(child);
+                        if (!visited.containsKey(child.packed())) {
+                            best.add(new Node(child, move, 0, child.h2()));
                             nodes++;
                         }
                     }
@@ -563,38 +465,355 @@ public class EightPuzzle implements Comparable<EightPuzzle> {
             // add k best children into consideration
             for (int i = 0; !best.isEmpty() && i < k; i++) {
                 frontier.add(best.poll());
-                if (gridToString(frontier.get(i)).equals("012345678")) {
+                if (frontier.get(i).board.isGoal()) {
                     solved = true;
-                    visited.put("012345678", frontier.get(i));
+                    visited.put(Board.GOAL_TILES, (byte) frontier.get(i).move);
                 }
             }
             // reset priority queue
             best.clear();
         }
 
-        if (nodes > maxNodes) {
+        nodesConsidered = nodes;
+        if (nodes > maxNodes()) {
             throw new OutOfMemoryError("Max node limit exceeded.");
         }
 
         // extract path
-        EightPuzzle trav = visited.get("012345678");
-        if (trav != null) {
-            List<String> path = new LinkedList<>();
-            while (trav != null) {
-                path.add(trav.prevMove);
-                trav = trav.parent;
+        if (visited.containsKey(Board.GOAL_TILES)) {
+            solution = extractPath(visited);
+            out.println(pathToString(solution));
+            out.println("Nodes considered: " + nodes);
+            out.println("Number of moves: " + solution.length + "\n");
+            return solution.length;
+        }
+
+        throw new Exception("No path found.");
+    }
+
+    /**
+     * Search node: a board, the move that reached it and its cost
+     */
+    private static class Node implements Comparable<Node> {
+        private final Board board;
+        private final int move;
+        private final int depth;
+        private final int value;
+
+        private Node(Board board, int move, int depth, int value) {
+            this.board = board;
+            this.move = move;
+            this.depth = depth;
+            this.value = value;
+        }
+
+        @Override
+        public int compareTo(Node o) {
+            return this.value - o.value;
+        }
+    }
+
+    /**
+     * Solves 8-Puzzle using beam search with bounded memory and prints the solution
+     * Duplicates are only detected against the states expanded in the last few levels,
+     * and children reached twice in one level are kept once before the best k are chosen
+     * The search gives up once the recent levels repeat, since it would then cycle
+     * forever, or once paths reach MAX_WINDOWED_DEPTH moves
+     * This version of beam search uses h2
+     * 
+     * @param k Number of states to be considered at each iteration
+     * @param window Number of recent levels checked for duplicates
+     * @return Number of moves
+     * @throws Exception
+     */
+    public int solveBeam(int k, int window) throws Exception {
+        if (k <= 0) {
+            throw new IllegalArgumentException("Invalid input for k.");
+        }
+        if (window <= 0) {
+            throw new IllegalArgumentException("Invalid input for window.");
+        }
+        solution = null;
+
+        // states expanded in each recent level, oldest first
+        LinkedList<Set<Long>> recent = new LinkedList<>();
+
+        // recent levels at the last checkpoint, to detect the beam cycling (Brent's method)
+        List<Set<Long>> checkpoint = null;
+        int checkpointGap = 1;
+        int sinceCheckpoint = 0;
+
+        // open states and the moves that reached them
+        Map<Long, PathNode> frontier = new HashMap<>();
+
+        // count of generated nodes, which can pass Integer.MAX_VALUE before the
+        // depth limit when the beam is wide
+        long nodes = 0;
+
+        // initial state is solved
+        long start = gridToLong(this);
+        if (start == Board.GOAL_TILES) {
+            solution = new byte[0];
+            nodesConsidered = 1;
+            out.println("[]");
+            out.println("Nodes considered: 1");
+            out.println("Number of moves: 0");
+            return 0;
+        }
+
+        // the beam would only cycle until it repeats a level
+        if (!Board.isSolvable(start)) {
+            nodesConsidered = 0;
+            throw new Exception("No path found.");
+        }
+
+        frontier.put(start, null);
+
+        // paths are chains as long as the search is deep, so their length is capped
+        int depth = 0;
+
+        while (!frontier.isEmpty() && !frontier.containsKey(Board.GOAL_TILES) && nodes <= maxNodes()
+                && depth++ < MAX_WINDOWED_DEPTH) {
+            recent.addLast(frontier.keySet());
+            if (recent.size() > window) {
+                recent.removeFirst();
+            }
+
+            // the next level depends only on the recent levels, so once they repeat
+            // the beam would cycle through the same levels forever
+            if (recent.equals(checkpoint)) {
+                break;
+            }
+            if (++sinceCheckpoint == checkpointGap) {
+                checkpoint = new ArrayList<>(recent);
+                checkpointGap *= 2;
+                sinceCheckpoint = 0;
+            }
+
+            // children of this level, each kept once
+            Map<Long, PathNode> children = new HashMap<>();
+            for (Map.Entry<Long, PathNode> entry : frontier.entrySet()) {
+                long state = entry.getKey();
+                int blank = Board.blankIndex(state);
+                for (int move : Board.NEIGHBORS[blank]) {
+                    long child = Board.swapBlank(state, blank, blank + Board.OFFSETS[move]);
+                    if (!children.containsKey(child) && !isRecent(recent, child)) {
+                        children.put(child, new PathNode(move, entry.getValue()));
+                        nodes++;
+                    }
+                }
+            }
+
+            // sort children by h2, ties broken by state, and keep the best k
+            long[] keys = new long[children.size()];
+            int i = 0;
+            for (long child : children.keySet()) {
+                keys[i++] = ((long) Board.h2(child) << 36) | child;
+            }
+            Arrays.sort(keys);
+            frontier = new HashMap<>();
+            for (i = 0; i < keys.length && i < k; i++) {
+                long child = keys[i] & 0xFFFFFFFFFL;
+                frontier.put(child, children.get(child));
             }
-            Collections.reverse(path);
-            path.remove(0);
-            System.out.println(path.toString());
-            System.out.println("Nodes considered: " + nodes);
-            System.out.println("Number of moves: " + path.size() + "\n");
-            return path.size();
+        }
+
+        nodesConsidered = (int) Math.min(nodes, Integer.MAX_VALUE);
+        if (nodes > maxNodes()) {
+            throw new OutOfMemoryError("Max node limit exceeded.");
+        }
+
+        // extract path
+        if (frontier.containsKey(Board.GOAL_TILES)) {
+            solution = PathNode.toArray(frontier.get(Board.GOAL_TILES));
+            out.println(pathToString(solution));
+            out.println("Nodes considered: " + nodes);
+            out.println("Number of moves: " + solution.length + "\n");
+            return solution.length;
         }
 
         throw new Exception("No path found.");
     }
 
+    /**
+     * Checks if a state was expanded in any of the recent levels
+     * 
+     * @param recent States expanded in each recent level
+     * @param state Packed state
+     * @return True if the state is a recent duplicate
+     */
+    private static boolean isRecent(List<Set<Long>> recent, long state) {
+        for (Set<Long> level : recent) {
+            if (level.contains(state)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Last move of a path, linked to the path before it
+     * Paths that share a prefix share its nodes, so only the prefixes of open
+     * states are kept alive
+     */
+    private static class PathNode {
+        private final byte move;
+        private final PathNode prev;
+        private final int length;
+
+        private PathNode(int move, PathNode prev) {
+            this.move = (byte) move;
+            this.prev = prev;
+            this.length = prev == null ? 1 : prev.length + 1;
+        }
+
+        /**
+         * Moves of a path from the initial state
+         * 
+         * @param last Last node of the path, or null for the empty path
+         * @return Move codes
+         */
+        private static byte[] toArray(PathNode last) {
+            byte[] path = new byte[last == null ? 0 : last.length];
+            for (PathNode node = last; node != null; node = node.prev) {
+                path[node.length - 1] = node.move;
+            }
+            return path;
+        }
+    }
+
+    /**
+     * Rebuilds the path to the goal from the incoming move of each visited state
+     * by reverse-applying moves from the goal until the initial state is reached
+     * 
+     * @param visited Map of packed state to the move that reached it
+     * @return Moves from the initial state to the goal
+     */
+    private static byte[] extractPath(Map<Long, Byte> visited) {
+        // count moves first so the path can be filled in back to front
+        int length = 0;
+        long state = Board.GOAL_TILES;
+        for (byte move = visited.get(state); move != Board.NONE; move = visited.get(state)) {
+            state = Board.applyMove(state, move ^ 1);
+            length++;
+        }
+        byte[] path = new byte[length];
+        state = Board.GOAL_TILES;
+        for (int i = length - 1; i >= 0; i--) {
+            path[i] = visited.get(state);
+            state = Board.applyMove(state, path[i] ^ 1);
+        }
+        return path;
+    }
+
+    /**
+     * Formats a list of move codes as move names
+     * 
+     * @param path Move codes
+     * @return String in the format [up, left]
+     */
+    protected static String pathToString(byte[] path) {
+        StringJoiner sj = new StringJoiner(", ", "[", "]");
+        for (byte move : path) {
+            sj.add(Board.MOVES[move]);
+        }
+        return sj.toString();
+    }
+
+    /**
+     * Solves the puzzle with a search method named as in the solve command
+     * ex. solve("A-star", "h2") or solve("beam", "5")
+     * 
+     * @param method Either "A-star" or "beam"
+     * @param argument Heuristic for A-star or k for beam
+     * @return Number of moves
+     * @throws Exception
+     */
+    public int solve(String method, String argument) throws Exception {
+        if (method.equals("A-star")) {
+            return solveAStar(argument);
+        } else if (method.equals("beam")) {
+            return solveBeam(Integer.parseInt(argument));
+        } else {
+            throw new IllegalArgumentException("Invalid search method.");
+        }
+    }
+
+    /**
+     * Sets where search results are printed, System.out by default
+     * 
+     * @param out Stream for search results
+     */
+    public void setOutput(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Returns where search results are printed
+     * 
+     * @return Stream for search results
+     */
+    public PrintStream getOutput() {
+        return out;
+    }
+
+    /**
+     * Records and prints a solution found without searching from this puzzle,
+     * in the same format as the search methods
+     * 
+     * @param path Moves from the current state to the goal, or null if there is no path
+     * @param nodes Number of nodes generated to find it
+     * @return Number of moves
+     */
+    protected int reportSolution(byte[] path, int nodes) {
+        solution = path == null ? null : path.clone();
+        nodesConsidered = nodes;
+        if (path == null) {
+            out.println("No path found.");
+            out.println("Number of moves: 0\n");
+            return 0;
+        }
+        out.println(pathToString(path));
+        out.println("Nodes considered: " + nodes);
+        out.println("Number of moves: " + path.length + "\n");
+        return path.length;
+    }
+
+    /**
+     * Returns the number of nodes generated by the last search
+     * 
+     * @return Nodes considered
+     */
+    public int getNodesConsidered() {
+        return nodesConsidered;
+    }
+
+    /**
+     * Returns the moves of the last solution found by this puzzle
+     * 
+     * @return Move codes indexed into Board.MOVES, or null if the last search found no path
+     */
+    public byte[] getSolution() {
+        return solution == null ? null : solution.clone();
+    }
+
+    /**
+     * Pack board into a long, 4 bits per tile with the top left tile first
+     * The goal state packs to 0x012345678
+     * 
+     * @param p puzzle to convert
+     * @return Packed board state
+     */
+    protected static long gridToLong(EightPuzzle p) {
+        long state = 0;
+        for (int[] row : p.grid) {
+            for (int x : row) {
+                state = (state << 4) | x;
+            }
+        }
+        return state;
+    }
+
     /**
      * Convert 2D array board to string
      * 
@@ -611,8 +830,12 @@ public class EightPuzzle implements Comparable<EightPuzzle> {
         return sb.toString();
     }
 
-    @Override
-    public String toString() {
+    /**
+     * Formats the board one row per line
+     * 
+     * @return String of board state
+     */
+    private String formatState() {
         StringBuilder printOut = new StringBuilder();
         for (int[] row : grid) {
             for (int tile : row) {
@@ -620,13 +843,19 @@ public class EightPuzzle implements Comparable<EightPuzzle> {
             }
             printOut.append("\n");
         }
-        System.out.println(printOut.toString());
         return printOut.toString();
     }
 
     @Override
-    public int compareTo(EightPuzzle o) {
-        return this.value - o.value;
+    public String toString() {
+        String printOut = formatState();
+        System.out.println(printOut);
+        return printOut;
+    }
+
+    @Override
+    public int hashCode() {
+        return getBoard().hashCode();
     }
 
     @Override
@@ -645,11 +874,86 @@ public class EightPuzzle implements Comparable<EightPuzzle> {
         return false;
     }
 
+    /**
+     * Runs one line of a command file, printing any messages and results
+     * 
+     * @param command Command and its arguments
+     * @param router Router for solve auto requests
+     * @throws Exception
+     */
+    public void execute(String command, SolverRouter router) throws Exception {
+        String[] arguments = command.split(" ");
+        if (arguments[0].equals("setState")) {
+            String[] state = new String[3];
+            state[0] = arguments[1];
+            state[1] = arguments[2];
+            state[2] = arguments[3];
+            if (setState(state)) {
+                out.println("State successfully set.");
+            } else {
+                out.println("Invalid state.");
+            }
+        } else if (arguments[0].equals("printState")) {
+            out.println(formatState());
+        } else if (arguments[0].equals("move")) {
+            if (arguments[1].equals("up")) {
+                if (!up()) {
+                    out.println("Cannot move up.");
+                }
+            } else if (arguments[1].equals("down")) {
+                if (!down()) {
+                    out.println("Cannot move down.");
+                }
+            } else if (arguments[1].equals("left")) {
+                if (!left()) {
+                    out.println("Cannot move left.");
+                }
+            } else if (arguments[1].equals("right")) {
+                if (!right()) {
+                    out.println("Cannot move right.");
+                }
+            } else {
+                throw new IllegalArgumentException("Invalid direction.");
+            }
+        } else if (arguments[0].equals("randomizeState")) {
+            if (arguments.length == 2) {
+                int n = Integer.parseInt(arguments[1]);
+                randomize(n);
+            } else {
+                int n = Integer.parseInt(arguments[1]);
+                long seed = Long.parseLong(arguments[2]);
+                randomize(n, seed);
+            }
+        } else if (arguments[0].equals("solve")) {
+            if (arguments[1].equals("auto")) {
+                long deadline = arguments.length > 2 ? Long.parseLong(arguments[2]) : 0;
+                router.solve(this, deadline);
+            } else if (arguments[1].equals("beam") && arguments.length > 3) {
+                int k = Integer.parseInt(arguments[2]);
+                int window = Integer.parseInt(arguments[3]);
+                solveBeam(k, window);
+            } else {
+                solve(arguments[1], arguments[2]);
+            }
+        } else if (arguments[0].equals("printRoutes")) {
+            router.printRoutes(out);
+        } else if (arguments[0].equals("maxNodes")) {
+            int n = Integer.parseInt(arguments[1]);
+            setNodeLimit(n);
+        } else if (!command.isEmpty()) {
+            throw new IllegalArgumentException("Command not recognized.");
+        }
+    }
+
     /**
      * Please input only one file at a time
      * ex. java EightPuzzle.java file.txt
+     * To keep a solver running for many requests instead, start a server
+     * ex. java EightPuzzle --server 3910
+     * To save the distance table snapshot ahead of time
+     * ex. java EightPuzzle --tables
      * 
-     * @param args File name
+     * @param args File name, --server and an optional port, or --tables
      * @throws Exception
      */
     public static void main(String[] args) throws Exception {
@@ -657,71 +961,26 @@ public class EightPuzzle implements Comparable<EightPuzzle> {
             System.out.println("Please specify a file.");
             return;
         }
+        if (args[0].equals("--server")) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : SolverServer.DEFAULT_PORT;
+            new SolverServer(port).serve();
+            return;
+        }
+        if (args[0].equals("--tables")) {
+            Distances.load();
+            if (Distances.isSaved()) {
+                System.out.println("Tables saved to " + Distances.snapshotFile() + ".");
+            } else {
+                System.out.println("Tables could not be saved to " + Distances.snapshotFile() + ".");
+            }
+            return;
+        }
         File file = new File(args[0]);
         Scanner scan = new Scanner(file);
         EightPuzzle p = new EightPuzzle();
+        SolverRouter router = new SolverRouter();
         while (scan.hasNextLine()) {
-            String command = scan.nextLine();
-            String[] arguments = command.split(" ");
-            if (arguments[0].equals("setState")) {
-                String[] state = new String[3];
-                state[0] = arguments[1];
-                state[1] = arguments[2];
-                state[2] = arguments[3];
-                if (p.setState(state)) {
-                    System.out.println("State successfully set.");
-                } else {
-                    System.out.println("Invalid state.");
-                }
-            } else if (arguments[0].equals("printState")) {
-                p.toString();
-            } else if (arguments[0].equals("move")) {
-                if (arguments[1].equals("up")) {
-                    if (!p.up()) {
-                        System.out.println("Cannot move up.");
-                    }
-                } else if (arguments[1].equals("down")) {
-                    if (!p.down()) {
-                        System.out.println("Cannot move down.");
-                    }
-                } else if (arguments[1].equals("left")) {
-                    if (!p.left()) {
-                        System.out.println("Cannot move left.");
-                    }
-                } else if (arguments[1].equals("right")) {
-                    if (!p.right()) {
-                        System.out.println("Cannot move right.");
-                    }
-                } else {
-                    throw new IllegalArgumentException("Invalid direction.");
-                }
-            } else if (arguments[0].equals("randomizeState")) {
-                if (arguments.length == 2) {
-                    int n = Integer.parseInt(arguments[1]);
-                    p.randomize(n);
-                } else {
-                    int n = Integer.parseInt(arguments[1]);
-                    long seed = Long.parseLong(arguments[2]);
-                    p.randomize(n, seed);
-                }
-            } else if (arguments[0].equals("solve")) {
-                if (arguments[1].equals("A-star")) {
-                    String heuristic = arguments[2];
-                    p.solveAStar(heuristic);
-                } else if (arguments[1].equals("beam")) {
-                    int k = Integer.parseInt(arguments[2]);
-                    p.solveBeam(k);
-                } else {
-                    throw new IllegalArgumentException("Invalid search method.");
-                }
-            } else if (arguments[0].equals("maxNodes")) {
-                int n = Integer.parseInt(arguments[1]);
-                setMaxNodes(n);
-            } else if (command.isEmpty()) {
-                continue;
-            } else {
-                throw new IllegalArgumentException("Command not recognized.");
-            }
+            p.execute(scan.nextLine(), router);
         }
         scan.close();
     }
@@ -1,7 +1,27 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 import org.junit.Assert;
 import org.junit.Test;
 
 public class EightPuzzleTester {
+    // Distances saves its snapshot to a temporary file instead of the working directory
+    static {
+        try {
+            Path tables = Files.createTempFile("eightpuzzle", ".tables");
+            tables.toFile().deleteOnExit();
+            System.setProperty("eightpuzzle.tables", tables.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
      * Test basic functions of 8-puzzle by
      * comparing expected output to actual output
@@ -66,4 +86,284 @@ public class EightPuzzleTester {
             Assert.assertTrue(true);
         }
     }
+
+    /**
+     * Test that the stored solution leads from the start state to the goal
+     */
+    @Test
+    public void testSolutionPath() {
+        EightPuzzle p = new EightPuzzle();
+        Assert.assertNull(p.getSolution());
+        Assert.assertTrue(p.setState(new String[] {"425", "103", "678"}));
+        Assert.assertEquals(8, p.solveAStar("h2"));
+
+        byte[] path = p.getSolution();
+        Assert.assertEquals(8, path.length);
+        Assert.assertEquals("[right, up, left, left, down, right, up, left]", EightPuzzle.pathToString(path));
+
+        // replaying the moves reaches the goal
+        for (byte move : path) {
+            if (move == Board.UP) {
+                Assert.assertTrue(p.up());
+            } else if (move == Board.DOWN) {
+                Assert.assertTrue(p.down());
+            } else if (move == Board.LEFT) {
+                Assert.assertTrue(p.left());
+            } else {
+                Assert.assertTrue(p.right());
+            }
+        }
+        Assert.assertEquals("012345678", EightPuzzle.gridToString(p));
+    }
+
+    /**
+     * Test that generated boards are solvable and repeat for the same seed
+     */
+    @Test
+    public void testGenerator() {
+        long[] walks = new PuzzleGenerator(7).randomWalks(1000, 30).toArray();
+        Assert.assertArrayEquals(walks, new PuzzleGenerator(7).randomWalks(1000, 30).parallel().toArray());
+
+        long[] boards = new PuzzleGenerator(7).uniform(1000).toArray();
+        Assert.assertArrayEquals(boards, new PuzzleGenerator(7).uniform(1000).parallel().toArray());
+
+        EightPuzzle p = new EightPuzzle();
+        for (long board : boards) {
+            Assert.assertTrue(Board.isSolvable(board));
+            Assert.assertEquals(board, Board.unrankTiles(Board.rank(board)));
+            Assert.assertTrue(p.setState(board));
+            Assert.assertEquals(board, EightPuzzle.gridToLong(p));
+        }
+        Assert.assertFalse(Board.isSolvable(0x021345678L));
+        Assert.assertFalse(p.setState(0x112345678L));
+    }
+
+    /**
+     * Test exact distances against known solution lengths
+     */
+    @Test
+    public void testDistances() {
+        Assert.assertEquals(0, Distances.distance(Board.GOAL));
+        Assert.assertEquals(3, Distances.distance(Board.of(0x142035678L)));
+        Assert.assertEquals(27, Distances.distance(Board.of(0x867254301L)));
+        Assert.assertEquals(Distances.UNREACHABLE, Distances.distance(Board.of(0x021345678L)));
+
+        // the two hardest boards need 31 moves
+        int hardest = 0;
+        for (int rank = 0; rank < Distances.PERMUTATIONS; rank++) {
+            int distance = Distances.distance(rank);
+            Assert.assertTrue(distance <= 31);
+            if (distance == 31) {
+                hardest++;
+            }
+        }
+        Assert.assertEquals(2, hardest);
+    }
+
+    /**
+     * Test that each route is taken when expected and finds the expected solution
+     */
+    @Test
+    public void testRouter() throws Exception {
+        // without the oracle the searching routes are used whether or not the table is built
+        SolverRouter router = new SolverRouter();
+        router.setOracle(false);
+        EightPuzzle p = new EightPuzzle();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        p.setOutput(new PrintStream(output));
+
+        Assert.assertTrue(p.setState(new String[] {"425", "103", "678"}));
+        output.reset();
+        Assert.assertEquals(8, router.solve(p, 0));
+        Assert.assertEquals("Route: A-star", output.toString().split("\\R")[0]);
+        Assert.assertEquals(8, p.getSolution().length);
+
+        // second request is answered from the cache without searching
+        output.reset();
+        Assert.assertEquals(8, router.solve(p, 0));
+        Assert.assertEquals("Route: cache", output.toString().split("\\R")[0]);
+        Assert.assertEquals(0, p.getNodesConsidered());
+
+        // A* answers are optimal even where h2 overestimates
+        Assert.assertTrue(p.setState(new String[] {"280", "136", "754"}));
+        output.reset();
+        Assert.assertEquals(18, router.solve(p, 0));
+        Assert.assertEquals("Route: A-star", output.toString().split("\\R")[0]);
+
+        // unsolvable boards are not searched
+        Assert.assertTrue(p.setState(new String[] {"021", "345", "678"}));
+        output.reset();
+        Assert.assertEquals(0, router.solve(p, 0));
+        Assert.assertEquals("Route: unsolvable", output.toString().split("\\R")[0]);
+        Assert.assertNull(p.getSolution());
+
+        // with a deadline, boards above the A* limit use beam search, which
+        // finds this board's 2 move solution at the starting width
+        router.setAStarLimit(0);
+        Assert.assertTrue(p.setState(new String[] {"142", "305", "678"}));
+        output.reset();
+        Assert.assertEquals(2, router.solve(p, 5));
+        Assert.assertEquals("Route: anytime beam", output.toString().split("\\R")[0]);
+
+        // with the table built, new boards are read off it
+        Distances.load();
+        router.setOracle(true);
+        Assert.assertTrue(p.setState(new String[] {"867", "254", "301"}));
+        output.reset();
+        Assert.assertEquals(27, router.solve(p, 0));
+        Assert.assertEquals("Route: oracle", output.toString().split("\\R")[0]);
+        Assert.assertEquals(0, p.getNodesConsidered());
+    }
+
+    /**
+     * Test beam search with a window of recent levels
+     */
+    @Test
+    public void testWindowedBeam() throws Exception {
+        EightPuzzle p = new EightPuzzle();
+        Assert.assertTrue(p.setState(new String[] {"806", "547", "231"}));
+        Assert.assertEquals(31, p.solveBeam(1000, 2));
+        Assert.assertEquals(31, p.getSolution().length);
+
+        // a narrow beam that cycles stops once its levels repeat
+        try {
+            p.solveBeam(10, 1);
+            Assert.assertFalse(true);
+        } catch (Exception e) {
+            Assert.assertEquals("No path found.", e.getMessage());
+            Assert.assertTrue(p.getNodesConsidered() < 10000);
+        }
+
+        // unsolvable boards are rejected before searching
+        Assert.assertTrue(p.setState(new String[] {"021", "345", "678"}));
+        try {
+            p.solveBeam(1000, 2);
+            Assert.assertFalse(true);
+        } catch (Exception e) {
+            Assert.assertEquals("No path found.", e.getMessage());
+            Assert.assertEquals(0, p.getNodesConsidered());
+        }
+
+        try {
+            p.solveBeam(5, 0);
+            Assert.assertFalse(true);
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(true);
+        }
+    }
+
+    /**
+     * Test that boards are values and moves do not change them
+     */
+    @Test
+    public void testBoard() {
+        EightPuzzle p = new EightPuzzle();
+        Assert.assertTrue(p.setState(new String[] {"142", "305", "678"}));
+        Board board = p.getBoard();
+        Assert.assertEquals("142 305 678", board.toString());
+        Assert.assertEquals(Board.of(0x142305678L), board);
+        Assert.assertEquals(Board.of(0x142305678L).hashCode(), board.hashCode());
+
+        // moving makes a new board
+        Board moved = board.move(Board.UP);
+        Assert.assertEquals("102 345 678", moved.toString());
+        Assert.assertEquals("142 305 678", board.toString());
+        Assert.assertEquals(Board.GOAL, moved.move(Board.LEFT));
+        Assert.assertNull(Board.GOAL.move(Board.UP));
+
+        // puzzles with equal grids have equal hash codes
+        EightPuzzle q = new EightPuzzle();
+        q.setState(board);
+        Assert.assertEquals(p, q);
+        Assert.assertEquals(p.hashCode(), q.hashCode());
+
+        try {
+            Board.of(0x112345678L);
+            Assert.assertFalse(true);
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(true);
+        }
+
+        Assert.assertEquals(Board.GOAL, Board.unrank(0));
+        for (int rank : new int[] {-1, 362880, 400000}) {
+            try {
+                Board.unrank(rank);
+                Assert.assertFalse(true);
+            } catch (IllegalArgumentException e) {
+                Assert.assertEquals("Invalid rank.", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Test that snapshots round trip and that stale or corrupt ones are rejected
+     */
+    @Test
+    public void testTableSnapshot() throws Exception {
+        Path file = Files.createTempFile("eightpuzzle", ".tables");
+        try {
+            byte[] table = {0, 1, 2, 3, -1};
+            TableSnapshot.save(file, 1, table);
+            ByteBuffer loaded = TableSnapshot.load(file, 1, table.length);
+            Assert.assertNotNull(loaded);
+            for (int i = 0; i < table.length; i++) {
+                Assert.assertEquals(table[i], loaded.get(i));
+            }
+
+            // another version or length
+            Assert.assertNull(TableSnapshot.load(file, 2, table.length));
+            Assert.assertNull(TableSnapshot.load(file, 1, table.length + 1));
+
+            // flipped payload byte
+            byte[] bytes = Files.readAllBytes(file);
+            bytes[bytes.length - 1] ^= 1;
+            Files.write(file, bytes);
+            Assert.assertNull(TableSnapshot.load(file, 1, table.length));
+
+            Files.delete(file);
+            Assert.assertNull(TableSnapshot.load(file, 1, table.length));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Test that commands print to the puzzle's output and node limits stay with their puzzle
+     */
+    @Test
+    public void testExecute() throws Exception {
+        SolverRouter router = new SolverRouter();
+        EightPuzzle p = new EightPuzzle();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        p.setOutput(new PrintStream(output));
+
+        p.execute("setState 142 305 678", router);
+        p.execute("move up", router);
+        p.execute("", router);
+        p.execute("printState", router);
+        p.execute("move up", router);
+        Assert.assertEquals("State successfully set.\n1 0 2 \n3 4 5 \n6 7 8 \n\nCannot move up.\n",
+                output.toString().replace(System.lineSeparator(), "\n"));
+
+        try {
+            p.execute("jump", router);
+            Assert.assertFalse(true);
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("Command not recognized.", e.getMessage());
+        }
+
+        // a node limit set by one puzzle does not apply to another
+        EightPuzzle q = new EightPuzzle();
+        q.setOutput(new PrintStream(OutputStream.nullOutputStream()));
+        p.execute("maxNodes 5", router);
+        p.execute("setState 806 547 231", router);
+        q.execute("setState 806 547 231", router);
+        try {
+            p.execute("solve A-star h1", router);
+            Assert.assertFalse(true);
+        } catch (OutOfMemoryError e) {
+            Assert.assertEquals("Max node limit exceeded.", e.getMessage());
+        }
+        Assert.assertEquals(31, q.solveOptimal());
+    }
 }
@@ -9,7 +9,8 @@ public class Experiments {
         long end = 0;
         long time = 0;
         for (int i = 0; i < 1000; i++) {
-            p.randomize(100);
+            // same walks as randomize(100), seeded so runs are comparable
+            p.randomize(100, 391 + i);
             try {
                 int moves = -1;
                 start = System.nanoTime();
@@ -0,0 +1,126 @@
+import java.util.SplittableRandom;
+import java.util.stream.LongStream;
+
+/**
+ * Generates streams of scrambled 8-puzzle boards packed into longs (see Board.packed)
+ * Each board gets its own SplittableRandom derived from the seed and the board's index,
+ * so a stream produces the same boards whether it is run sequentially or in parallel
+ */
+public class PuzzleGenerator {
+    // Number of tile orders, 9!
+    private static final int PERMUTATIONS = 362880;
+
+    // Seed shared by every board of this generator
+    private final long seed;
+
+    /**
+     * Constructs a generator whose boards are determined by the seed
+     * 
+     * @param seed Seed for random number generators
+     */
+    public PuzzleGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Boards made by random walks of n moves from the goal state
+     * 
+     * @param count Number of boards
+     * @param n Number of moves per walk
+     * @return Stream of packed boards
+     */
+    public LongStream randomWalks(long count, int n) {
+        if (count < 0 || n < 0) {
+            throw new IllegalArgumentException("Please enter values of at least 0.");
+        }
+        return LongStream.range(0, count).map(i -> randomWalk(random(i), n));
+    }
+
+    /**
+     * Boards drawn uniformly from all solvable states
+     * 
+     * @param count Number of boards
+     * @return Stream of packed boards
+     */
+    public LongStream uniform(long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Please enter a value of at least 0.");
+        }
+        return LongStream.range(0, count).map(i -> uniform(random(i)));
+    }
+
+    /**
+     * Performs n random moves from the goal state, never undoing the previous move
+     * 
+     * @param random Random number generator
+     * @param n Number of moves
+     * @return Packed board
+     */
+    public static long randomWalk(SplittableRandom random, int n) {
+        long state = Board.GOAL_TILES;
+        int blank = 0;
+        int prevMove = Board.NONE;
+        for (int i = 0; i < n; i++) {
+            int[] moves = Board.NEIGHBORS[blank];
+            int move;
+            if (prevMove == Board.NONE) {
+                move = moves[random.nextInt(moves.length)];
+            } else {
+                // pick among the moves other than the one undoing prevMove
+                move = moves[random.nextInt(moves.length - 1)];
+                if (move == (prevMove ^ 1)) {
+                    move = moves[moves.length - 1];
+                }
+            }
+            int target = blank + Board.OFFSETS[move];
+            state = Board.swapBlank(state, blank, target);
+            blank = target;
+            prevMove = move;
+        }
+        return state;
+    }
+
+    /**
+     * Draws a board uniformly from all solvable states
+     * Unsolvable orders are mapped onto solvable ones by swapping the first two
+     * non-blank tiles, which pairs the two halves one to one
+     * 
+     * @param random Random number generator
+     * @return Packed board
+     */
+    public static long uniform(SplittableRandom random) {
+        long state = Board.unrankTiles(random.nextInt(PERMUTATIONS));
+        if (Board.isSolvable(state)) {
+            return state;
+        }
+        int blank = Board.blankIndex(state);
+        int first = blank == 0 ? 1 : 0;
+        int second = blank == first + 1 ? first + 2 : first + 1;
+        long a = (state >>> (32 - 4 * first)) & 0xF;
+        long b = (state >>> (32 - 4 * second)) & 0xF;
+        state &= ~((0xFL << (32 - 4 * first)) | (0xFL << (32 - 4 * second)));
+        return state | (b << (32 - 4 * first)) | (a << (32 - 4 * second));
+    }
+
+    /**
+     * Random number generator for the board at an index
+     * 
+     * @param index Index of the board in the stream
+     * @return Generator seeded from this generator's seed and the index
+     */
+    private SplittableRandom random(long index) {
+        return new SplittableRandom(mix(seed + mix(index)));
+    }
+
+    /**
+     * Scrambles the bits of a long so nearby inputs give unrelated seeds
+     * 
+     * @param z Input
+     * @return Mixed value
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
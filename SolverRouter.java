@@ -0,0 +1,264 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.*;
+
+/**
+ * Picks a search method for each solve request from a cheap estimate of its difficulty
+ * Routes, tried in order:
+ *   unsolvable - the tile parity rules out a solution, so nothing is searched
+ *   cache - the state was solved optimally before, by the oracle or A-star route
+ *   oracle - the exact distance table is built or its snapshot saved, so the optimal path is read off it
+ *   A-star - no deadline, or h2 is small enough that A* is expected to be fast
+ *     This uses the Manhattan distance without the blank rather than h2, so its solutions are optimal
+ *   anytime beam - beam search widened from the tuned k until the deadline would be missed
+ *     Its solutions may be longer than optimal, so they are not cached
+ * The latency of every route is recorded so the thresholds can be tuned from printRoutes
+ */
+public class SolverRouter {
+    // Route names, also the order they are printed in
+    private static final String[] ROUTES = {"unsolvable", "cache", "oracle", "A-star", "anytime beam"};
+
+    // Widest beam the anytime route will try
+    private static final int MAX_BEAM_WIDTH = 1 << 17;
+
+    // Discards output of the searches tried by the anytime route
+    private static final PrintStream NO_OUTPUT = new PrintStream(OutputStream.nullOutputStream());
+
+    // With a deadline, boards with h2 above this are sent to the anytime route
+    private int aStarLimit = 20;
+
+    // Beam width the anytime route starts from
+    private int beamWidth = 5;
+
+    // True if the oracle route may be used once the distance table is available
+    private boolean oracle = true;
+
+    // Optimal solutions found by the oracle and A-star routes, least recently used evicted first
+    private final Map<Board, byte[]> cache;
+
+    // Latency of each route
+    private final Map<String, Histogram> latencies = new HashMap<>();
+
+    /**
+     * Constructs a router with an empty cache of the given size
+     * 
+     * @param cacheSize Max number of solutions to cache
+     */
+    public SolverRouter(int cacheSize) {
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("Please enter a value of at least 0.");
+        }
+        cache = Collections.synchronizedMap(new LinkedHashMap<Board, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Board, byte[]> eldest) {
+                return size() > cacheSize;
+            }
+        });
+        for (String route : ROUTES) {
+            latencies.put(route, new Histogram());
+        }
+    }
+
+    /**
+     * Constructs a router caching up to 65536 solutions
+     */
+    public SolverRouter() {
+        this(1 << 16);
+    }
+
+    /**
+     * Set the h2 value above which boards with a deadline use the anytime route
+     * 
+     * @param limit Largest h2 value solved with A*
+     */
+    public void setAStarLimit(int limit) throws IllegalArgumentException {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Please enter a value of at least 0.");
+        }
+        aStarLimit = limit;
+    }
+
+    /**
+     * Set the beam width the anytime route starts from
+     * 
+     * @param k Number of states for beam search to store at each iteration
+     */
+    public void setBeamWidth(int k) throws IllegalArgumentException {
+        if (k <= 0) {
+            throw new IllegalArgumentException("Please enter a value greater than 0.");
+        }
+        beamWidth = k;
+    }
+
+    /**
+     * Set whether the oracle route may be used
+     * Turning it off keeps the searching routes in use even when the distance table is available
+     * 
+     * @param enabled True to read solutions off the distance table when it is available
+     */
+    public void setOracle(boolean enabled) {
+        oracle = enabled;
+    }
+
+    /**
+     * Solves the puzzle with the route chosen for it and prints the route and solution
+     * 
+     * @param p Puzzle to solve
+     * @param deadline Milliseconds the request may take, or 0 for no deadline
+     * @return Number of moves
+     * @throws Exception
+     */
+    public int solve(EightPuzzle p, long deadline) throws Exception {
+        if (deadline < 0) {
+            throw new IllegalArgumentException("Invalid deadline.");
+        }
+        long start = System.nanoTime();
+        Board board = p.getBoard();
+        byte[] cached = cache.get(board);
+        String route = route(board, cached != null, deadline);
+        p.getOutput().println("Route: " + route);
+
+        int moves;
+        if (route.equals("unsolvable")) {
+            moves = p.reportSolution(null, 0);
+        } else if (route.equals("cache")) {
+            moves = p.reportSolution(cached, 0);
+        } else if (route.equals("oracle")) {
+            byte[] path = Distances.solve(board);
+            cache.put(board, path);
+            moves = p.reportSolution(path, 0);
+        } else if (route.equals("A-star")) {
+            moves = p.solveOptimal();
+            if (p.getSolution() != null) {
+                cache.put(board, p.getSolution());
+            }
+        } else {
+            moves = solveAnytime(p, start + deadline * 1000000);
+        }
+
+        Histogram histogram = latencies.get(route);
+        synchronized (histogram) {
+            histogram.add((System.nanoTime() - start) / 1000);
+        }
+        return moves;
+    }
+
+    /**
+     * Chooses the route for a board
+     * 
+     * @param board Board being solved
+     * @param cached True if the state has a cached solution
+     * @param deadline Milliseconds the request may take, or 0 for no deadline
+     * @return Route name
+     */
+    private String route(Board board, boolean cached, long deadline) {
+        if (!board.isSolvable()) {
+            return "unsolvable";
+        }
+        if (cached) {
+            return "cache";
+        }
+        if (oracle && Distances.isAvailable()) {
+            return "oracle";
+        }
+        if (deadline == 0 || board.h2() <= aStarLimit) {
+            return "A-star";
+        }
+        return "anytime beam";
+    }
+
+    /**
+     * Runs beam search with doubling k while the next width is expected to finish
+     * before the deadline, and reports the shortest solution found
+     * 
+     * @param p Puzzle to solve
+     * @param deadline System.nanoTime value to finish by
+     * @return Number of moves
+     */
+    private int solveAnytime(EightPuzzle p, long deadline) {
+        PrintStream out = p.getOutput();
+        p.setOutput(NO_OUTPUT);
+        byte[] best = null;
+        int nodes = 0;
+        try {
+            for (int k = beamWidth; k <= MAX_BEAM_WIDTH; k *= 2) {
+                long start = System.nanoTime();
+                try {
+                    p.solveBeam(k);
+                } catch (OutOfMemoryError e) {
+                    // keep the best solution so far
+                } catch (Exception e) {
+                    // keep the best solution so far
+                }
+                nodes += p.getNodesConsidered();
+                byte[] path = p.getSolution();
+                if (path != null && (best == null || path.length < best.length)) {
+                    best = path;
+                }
+                // a beam twice as wide takes about twice as long
+                long end = System.nanoTime();
+                if (end + 2 * (end - start) > deadline) {
+                    break;
+                }
+            }
+        } finally {
+            p.setOutput(out);
+        }
+        return p.reportSolution(best, nodes);
+    }
+
+    /**
+     * Prints the number of requests and latency percentiles of each route
+     * 
+     * @param out Stream to print to
+     */
+    public void printRoutes(PrintStream out) {
+        out.println(String.format("%-14s %8s %10s %10s %10s %10s",
+                "route", "count", "mean(us)", "p50(us)", "p90(us)", "p99(us)"));
+        for (String route : ROUTES) {
+            Histogram histogram = latencies.get(route);
+            synchronized (histogram) {
+                if (histogram.count == 0) {
+                    continue;
+                }
+                out.println(String.format("%-14s %8d %10d %10d %10d %10d", route, histogram.count,
+                        histogram.total / histogram.count, histogram.percentile(0.5),
+                        histogram.percentile(0.9), histogram.percentile(0.99)));
+            }
+        }
+        out.println();
+    }
+
+    /**
+     * Latency histogram with power of two buckets in microseconds
+     */
+    private static class Histogram {
+        // buckets[i] counts latencies below 2^i microseconds
+        private final long[] buckets = new long[64];
+        private long count;
+        private long total;
+
+        private void add(long micros) {
+            buckets[64 - Long.numberOfLeadingZeros(micros)]++;
+            count++;
+            total += micros;
+        }
+
+        /**
+         * Upper bound of the bucket holding the given fraction of requests
+         * 
+         * @param fraction Fraction between 0 and 1
+         * @return Latency in microseconds
+         */
+        private long percentile(double fraction) {
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= fraction * count) {
+                    return (1L << i) - 1;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+}
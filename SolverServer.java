@@ -0,0 +1,107 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps one JVM running to answer solver requests over a local socket
+ * Each connection is a session with its own puzzle and takes the same commands
+ * as a command file, one per line. Every command is answered with its output
+ * followed by "OK <time>us", or "ERR <message>" if it failed. "quit" ends the session.
+ * Sessions run concurrently and share the router's cache and the distance table.
+ */
+public class SolverServer {
+    // Port used when none is given
+    protected static final int DEFAULT_PORT = 3910;
+
+    // Listens on the loopback address only
+    private final ServerSocket socket;
+
+    // Shared by every session
+    private final SolverRouter router = new SolverRouter();
+
+    // Runs one task per session
+    private final ExecutorService sessions = newExecutor();
+
+    /**
+     * Opens the server socket on the loopback address
+     * 
+     * @param port Port to listen on
+     * @throws IOException Port could not be opened
+     */
+    public SolverServer(int port) throws IOException {
+        socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * Loads the shared tables, then accepts connections until the process is stopped
+     * 
+     * @throws IOException Server socket failed
+     */
+    public void serve() throws IOException {
+        // load once up front so no request pays for it
+        Distances.load();
+        System.out.println("Listening on port " + socket.getLocalPort());
+        while (true) {
+            Socket client = socket.accept();
+            sessions.execute(() -> session(client));
+        }
+    }
+
+    /**
+     * Answers the commands of one connection until it closes or sends quit
+     * 
+     * @param client Connection to a client
+     */
+    private void session(Socket client) {
+        try (Socket connection = client;
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+                PrintStream out = new PrintStream(
+                        new BufferedOutputStream(connection.getOutputStream()), false, StandardCharsets.UTF_8)) {
+            EightPuzzle p = new EightPuzzle();
+            p.setOutput(out);
+            String command;
+            while ((command = in.readLine()) != null && !command.equals("quit")) {
+                long start = System.nanoTime();
+                try {
+                    p.execute(command.trim(), router);
+                    out.println("OK " + (System.nanoTime() - start) / 1000 + "us");
+                } catch (OutOfMemoryError e) {
+                    out.println("ERR " + e.getMessage());
+                } catch (Exception e) {
+                    out.println("ERR " + e.getMessage());
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // client went away, nothing to answer
+        }
+    }
+
+    /**
+     * Uses a virtual thread per session when the JVM has them (Java 21+),
+     * and a cached pool of platform threads otherwise
+     * 
+     * @return Executor for sessions
+     */
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        new SolverServer(port).serve();
+    }
+}
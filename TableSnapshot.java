@@ -0,0 +1,77 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of a precomputed table, so later launches can map it instead of rebuilding it
+ * Layout: magic, version and payload length as ints, CRC32 of the payload as a long, then the payload
+ */
+public class TableSnapshot {
+    // "8PZT"
+    private static final int MAGIC = 0x38505A54;
+
+    // Bytes before the payload
+    private static final int HEADER = 20;
+
+    /**
+     * Writes a snapshot, replacing any existing file in one step so concurrent
+     * launches never map a partly written file
+     * 
+     * @param file Snapshot file
+     * @param version Version of the table's contents
+     * @param payload Table
+     * @throws IOException File could not be written
+     */
+    public static void save(Path file, int version, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER + payload.length);
+        buffer.putInt(MAGIC).putInt(version).putInt(payload.length).putLong(crc.getValue()).put(payload);
+
+        // written next to the snapshot so the move stays on one file system, and created
+        // with the default permissions so other users can map it, unlike Files.createTempFile
+        Path temp = file.resolveSibling(file.getFileName() + "." + ProcessHandle.current().pid() + ".tmp");
+        try {
+            Files.write(temp, buffer.array());
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Maps a snapshot into memory
+     * 
+     * @param file Snapshot file
+     * @param version Expected version of the table's contents
+     * @param length Expected payload length
+     * @return Read-only payload, or null if the file is missing, from another version, or corrupt
+     */
+    public static ByteBuffer load(Path file, int version, int length) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() != HEADER + length) {
+                return null;
+            }
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (map.getInt(0) != MAGIC || map.getInt(4) != version || map.getInt(8) != length) {
+                return null;
+            }
+            ByteBuffer payload = map.slice(HEADER, length);
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if (crc.getValue() != map.getLong(12)) {
+                return null;
+            }
+            return payload;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}